@@ -0,0 +1,272 @@
+package com.github.jjYBdx4IL.diskcache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CompletableFuture} based facade for a {@link DiskCache}. All blocking work (JDBC, file I/O and fsync)
+ * is run on a bounded pool of platform I/O threads instead of the caller's thread.
+ * <p>
+ * <b>Backpressure</b>: at most maxPending operations may be queued or running at any time. There are two
+ * ways to submit an operation when that limit is reached:
+ * <ul>
+ * <li> {@link #getAsync(String)} and {@link #putAsync(String, byte[])} never block. They return a future
+ * that has already failed with a {@link RejectedExecutionException}. Use these from event loop threads.
+ * <li> {@link #getAsyncBlocking(String)} and {@link #putAsyncBlocking(String, byte[])} block the caller until
+ * a slot becomes free. The wait is done on a {@link Semaphore}, so a waiting virtual thread gets unmounted
+ * instead of pinning its carrier.
+ * </ul>
+ * <p>
+ * <b>Virtual threads</b>: calling {@link DiskCache} directly from a virtual thread pins its carrier during
+ * database access, because H2 executes every JDBC statement inside a <code>synchronized</code> block on
+ * the session. This facade avoids that only by moving the database and file I/O to its own platform
+ * threads, which also limits the number of concurrent database connections to the number of I/O threads.
+ * <p>
+ * <b>Callbacks</b>: the returned futures are completed on a separate completion executor, never on the I/O
+ * threads, and only after the operation's slot has been freed. Dependent stages may therefore call back
+ * into this facade, including the blocking variants.
+ * <p>
+ * Closing this facade shuts down the I/O threads, but does not close the wrapped cache.
+ *
+ * @author Github jjYBdx4IL Projects
+ */
+public class AsyncDiskCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDiskCache.class);
+    public static final int DEFAULT_IO_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_MAX_PENDING = 1024;
+    public static final long SHUTDOWN_TIMEOUT_SECS = 60L;
+
+    private final DiskCache cache;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore pending;
+    private final Executor completionExecutor;
+
+    public AsyncDiskCache(DiskCache cache) {
+        this(cache, DEFAULT_IO_THREADS, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Completes the returned futures on {@link ForkJoinPool#commonPool()}.
+     *
+     * @param cache the cache to wrap.
+     * @param ioThreads the number of threads doing the blocking I/O.
+     * @param maxPending max number of queued or running operations.
+     */
+    public AsyncDiskCache(DiskCache cache, int ioThreads, int maxPending) {
+        this(cache, ioThreads, maxPending, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param cache the cache to wrap.
+     * @param ioThreads the number of threads doing the blocking I/O.
+     * @param maxPending max number of queued or running operations.
+     * @param completionExecutor completes the returned futures, ie. runs their non-async dependent stages.
+     */
+    public AsyncDiskCache(DiskCache cache, int ioThreads, int maxPending, Executor completionExecutor) {
+        if (cache == null || completionExecutor == null) {
+            throw new IllegalArgumentException();
+        }
+        if (ioThreads < 1 || maxPending < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.cache = cache;
+        this.pending = new Semaphore(maxPending);
+        this.completionExecutor = completionExecutor;
+        this.executor = new ThreadPoolExecutor(ioThreads, ioThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new IoThreadFactory());
+    }
+
+    public DiskCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Does not block. The returned future fails with a {@link RejectedExecutionException} if maxPending
+     * operations are already pending or this facade has been closed.
+     */
+    public CompletableFuture<Void> putAsync(final String key, final byte[] data) {
+        return submit(putTask(key, data), false);
+    }
+
+    /**
+     * May block the caller until less than maxPending operations are pending.
+     */
+    public CompletableFuture<Void> putAsyncBlocking(final String key, final byte[] data) {
+        return submit(putTask(key, data), true);
+    }
+
+    /**
+     * Does not block. The returned future fails with a {@link RejectedExecutionException} if maxPending
+     * operations are already pending or this facade has been closed.
+     *
+     * @param key
+     * @return a future returning null if the key was not found or the data has expired.
+     */
+    public CompletableFuture<byte[]> getAsync(final String key) {
+        return submit(() -> cache.get(key), false);
+    }
+
+    /**
+     * Does not block, see {@link #getAsync(String)}.
+     *
+     * @param key
+     * @param _expiryMillis -1 or less to ignore expiration
+     * @return a future returning null if the key was not found or the data has expired.
+     */
+    public CompletableFuture<byte[]> getAsync(final String key, final long _expiryMillis) {
+        return submit(() -> cache.get(key, _expiryMillis), false);
+    }
+
+    /**
+     * May block the caller until less than maxPending operations are pending.
+     *
+     * @param key
+     * @return a future returning null if the key was not found or the data has expired.
+     */
+    public CompletableFuture<byte[]> getAsyncBlocking(final String key) {
+        return submit(() -> cache.get(key), true);
+    }
+
+    /**
+     * May block the caller until less than maxPending operations are pending.
+     *
+     * @param key
+     * @param _expiryMillis -1 or less to ignore expiration
+     * @return a future returning null if the key was not found or the data has expired.
+     */
+    public CompletableFuture<byte[]> getAsyncBlocking(final String key, final long _expiryMillis) {
+        return submit(() -> cache.get(key, _expiryMillis), true);
+    }
+
+    private Callable<Void> putTask(final String key, final byte[] data) {
+        return () -> {
+            cache.put(key, data);
+            return null;
+        };
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> task, boolean wait) {
+        final IoTask<T> ioTask = new IoTask<>(task);
+        if (executor.isShutdown()) {
+            ioTask.future.completeExceptionally(new RejectedExecutionException("closed"));
+            return ioTask.future;
+        }
+        if (wait) {
+            try {
+                pending.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                ioTask.future.completeExceptionally(ex);
+                return ioTask.future;
+            }
+        } else if (!pending.tryAcquire()) {
+            ioTask.future.completeExceptionally(new RejectedExecutionException("too many pending operations"));
+            return ioTask.future;
+        }
+        try {
+            executor.execute(ioTask);
+        } catch (RejectedExecutionException ex) {
+            pending.release();
+            ioTask.future.completeExceptionally(ex);
+        }
+        return ioTask.future;
+    }
+
+    /**
+     * Waits up to {@link #SHUTDOWN_TIMEOUT_SECS} for pending operations to finish. On timeout, operations
+     * that have not been started yet are dropped and their futures fail with a
+     * {@link RejectedExecutionException}, running operations get interrupted.
+     *
+     * @throws IOException on timeout
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                rejectAll(executor.shutdownNow());
+                throw new IOException("timed out waiting for pending operations");
+            }
+        } catch (InterruptedException ex) {
+            rejectAll(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        LOG.debug("closed");
+    }
+
+    private void rejectAll(List<Runnable> dropped) {
+        for (Runnable r : dropped) {
+            pending.release();
+            ((IoTask<?>) r).future.completeExceptionally(new RejectedExecutionException("closed"));
+        }
+    }
+
+    private class IoTask<T> implements Runnable {
+
+        private final Callable<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        IoTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = task.call();
+            } catch (Throwable ex) {
+                failure = ex;
+            } finally {
+                // free the slot before any dependent stage can submit new operations
+                pending.release();
+            }
+            final T _result = result;
+            final Throwable _failure = failure;
+            Runnable completion = () -> {
+                if (_failure != null) {
+                    future.completeExceptionally(_failure);
+                } else {
+                    future.complete(_result);
+                }
+            };
+            try {
+                completionExecutor.execute(completion);
+            } catch (RejectedExecutionException ex) {
+                completion.run();
+            }
+        }
+    }
+
+    private static class IoThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+        private final int poolId = POOL_COUNTER.incrementAndGet();
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "diskcache-io-" + poolId + "-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
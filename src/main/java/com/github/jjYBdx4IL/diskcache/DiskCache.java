@@ -13,16 +13,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
-import javax.persistence.TypedQuery;
+import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -52,7 +57,9 @@ import org.slf4j.LoggerFactory;
  * to synchronize (flushing) the directory containing the big files.
  * </ul>
  * <p>
- * <b>Pruning</b>: tbd.
+ * <b>Pruning</b>: every put stores a new entry. Once it is finished, the put removes the older entries of the
+ * same key together with their data files. A reader that has already looked up a removed entry sees it as a
+ * cache miss. Expired entries are not pruned.
  *
  * @author jjYBdx4IL
  */
@@ -65,6 +72,8 @@ public class DiskCache implements Closeable {
     public static final String INVALID_DBNAME_CHARS = File.separatorChar + "/\\;:";
     // store every data file larger than this in its separate file on disk
     public static final long MAX_BLOB_SIZE = 32 * 1024;
+    // number of entries fetched per query when scanning
+    public static final int SCAN_PAGE_SIZE = 1000;
 
     private static File getDefaultParentDir() {
         File configDir = new File(System.getProperty("user.home"), ".config");
@@ -176,23 +185,14 @@ public class DiskCache implements Closeable {
         byte[] buf = new byte[(int) MAX_BLOB_SIZE + 1];
         long size = IOUtils.read(input, buf);
 
-        DiskCacheEntry dce;
-
-        final EntityManager em = emf.createEntityManager();
-        final DiskCacheQueryFactory queryFactory = new DiskCacheQueryFactory(em);
-
-        TypedQuery<DiskCacheEntry> results = queryFactory.getByUrlQuery(key);
-        if (results.getResultList().isEmpty()) {
-            dce = new DiskCacheEntry();
-            dce.setUrl(key);
-        } else {
-            dce = results.getResultList().get(0);
-        }
-
+        // always store a new entry so concurrent puts of the same key never share a row or a data file
+        final DiskCacheEntry dce = new DiskCacheEntry();
+        dce.setUrl(key);
         dce.setCreatedAt(0L);
         dce.setData(null);
         dce.setSize(-1L); // mark as unfinished
 
+        final EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
@@ -221,6 +221,46 @@ public class DiskCache implements Closeable {
             tx.commit();
 
             LOG.debug("stored " + key + " (" + size + " bytes), " + dce.toString());
+
+            removeSuperseded(em, key, dce.getId());
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Removes older finished entries of the given key and their data files. Best effort: if a concurrent put
+     * of the same key removes them at the same time, the database may refuse the delete. Entries left over
+     * get removed by the next put of that key.
+     */
+    private void removeSuperseded(EntityManager em, String key, long id) {
+        final DiskCacheQueryFactory queryFactory = new DiskCacheQueryFactory(em);
+        EntityTransaction tx = em.getTransaction();
+        try {
+            // filter by id here, a range condition on id would make H2 scan the primary key instead of
+            // using the url index
+            List<Long> ids = new ArrayList<>();
+            for (Long otherId : queryFactory.getIdsByUrlQuery(key).getResultList()) {
+                if (otherId < id) {
+                    ids.add(otherId);
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            tx.begin();
+            queryFactory.getDeleteByIdsQuery(ids).executeUpdate();
+            tx.commit();
+
+            for (Long oldId : ids) {
+                FileUtils.deleteQuietly(new File(this.fileStorageDir, Long.toString(oldId)));
+            }
+            LOG.debug("removed " + ids.size() + " superseded entries of " + key);
+        } catch (PersistenceException ex) {
+            LOG.debug("failed to remove superseded entries of " + key, ex);
         } finally {
             if (tx.isActive()) {
                 tx.rollback();
@@ -252,7 +292,7 @@ public class DiskCache implements Closeable {
     /**
      *
      * @param key
-     * @param _expiryMillis -1 or less to ignore expiration
+     * @param _expiryMillis -1 or less to ignore expiration, 0 to treat every entry as expired
      * @return
      */
     public InputStream getStream(String key, long _expiryMillis) {
@@ -261,18 +301,23 @@ public class DiskCache implements Closeable {
             throw new IllegalArgumentException();
         }
 
+        final List<DiskCacheEntry> results;
         final EntityManager em = emf.createEntityManager();
-        final DiskCacheQueryFactory queryFactory = new DiskCacheQueryFactory(em);
-
-        TypedQuery<DiskCacheEntry> results = queryFactory.getByUrlQuery(key);
-        if (results.getResultList().isEmpty()) {
+        try {
+            final DiskCacheQueryFactory queryFactory = new DiskCacheQueryFactory(em);
+            results = queryFactory.getByUrlQuery(key).setMaxResults(1).getResultList();
+        } finally {
+            em.close();
+        }
+        if (results.isEmpty()) {
             return null;
         }
 
-        DiskCacheEntry dce = results.getResultList().get(0);
+        DiskCacheEntry dce = results.get(0);
 
         final long notBefore = System.currentTimeMillis() - _expiryMillis;
-        if (_expiryMillis >= 0L && dce.getCreatedAt() < notBefore) {
+        // an expiry of 0 treats every entry as expired, even one stored within the current millisecond
+        if (_expiryMillis == 0L || _expiryMillis > 0L && dce.getCreatedAt() < notBefore) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(String.format(Locale.ROOT, "entry %d seconds too old - %s", (notBefore - dce.getCreatedAt()) / 1000L, key));
             }
@@ -294,6 +339,114 @@ public class DiskCache implements Closeable {
         return getStream(key, this.expiryMillis);
     }
 
+    /**
+     * Lazily walks all entries.
+     *
+     * @return see {@link #scan(String, long)}
+     */
+    public Stream<EntryMeta> scan() {
+        return scan(null, -1L);
+    }
+
+    /**
+     * Lazily walks the metadata of the cache's entries in id order. Entries are fetched in pages of
+     * {@link #SCAN_PAGE_SIZE} without their data, which can be retrieved on demand via
+     * {@link EntryMeta#getData()}, so memory usage does not depend on the number of entries. The
+     * returned stream supports parallel processing by splitting the id range.
+     * <p>
+     * The scan does not see a consistent snapshot:
+     * <ul>
+     * <li> The id range is fixed when the scan starts. Entries stored later, including overwrites of existing
+     * keys, get a higher id and are not included.
+     * <li> An overwrite removes the older entry once it has finished (see pruning above). If that happens
+     * during the scan, the key is skipped if the scan has not reached it yet. Otherwise it has already been
+     * returned with its old metadata, and {@link EntryMeta#getData()} returns null.
+     * <li> Entries still being written when their page is fetched are skipped.
+     * <li> Until older entries have been pruned, the same key may show up more than once.
+     * </ul>
+     *
+     * @param keyPrefix only return entries whose key starts with this prefix. may be null.
+     * @param _expiryMillis only return entries not older than this, -1 or less to ignore expiration.
+     * @return a lazily populated stream of entry metadata.
+     */
+    public Stream<EntryMeta> scan(String keyPrefix, long _expiryMillis) {
+        return StreamSupport.stream(scanSpliterator(keyPrefix, _expiryMillis), false);
+    }
+
+    EntryMetaSpliterator scanSpliterator(String keyPrefix, long _expiryMillis) {
+        if (keyPrefix != null && keyPrefix.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("key prefix too long: " + keyPrefix);
+        }
+
+        final long notBefore = _expiryMillis >= 0L ? System.currentTimeMillis() - _expiryMillis : 0L;
+
+        long minId = 0L;
+        long maxId = 0L;
+        final EntityManager em = emf.createEntityManager();
+        try {
+            Tuple range = new DiskCacheQueryFactory(em).getIdRangeQuery().getSingleResult();
+            if (range.get(0) != null) {
+                minId = (Long) range.get(0);
+                maxId = (Long) range.get(1);
+            }
+        } finally {
+            em.close();
+        }
+
+        return new EntryMetaSpliterator(this, keyPrefix, notBefore, minId - 1L, maxId, SCAN_PAGE_SIZE);
+    }
+
+    List<EntryMeta> fetchMetaPage(String keyPrefix, long notBefore, long afterId, long maxId, int pageSize) {
+        final EntityManager em = emf.createEntityManager();
+        try {
+            final DiskCacheQueryFactory queryFactory = new DiskCacheQueryFactory(em);
+            List<Tuple> rows = queryFactory.getMetaPageQuery(keyPrefix, notBefore, afterId, maxId, pageSize)
+                    .getResultList();
+            List<EntryMeta> page = new ArrayList<>(rows.size());
+            for (Tuple row : rows) {
+                page.add(new EntryMeta(this, (Long) row.get(0), (String) row.get(1), (Long) row.get(2),
+                        (Long) row.get(3)));
+            }
+            return page;
+        } finally {
+            em.close();
+        }
+    }
+
+    byte[] getById(long id, long createdAt) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                InputStream is = getStreamById(id, createdAt)) {
+            if (is == null) {
+                return null;
+            }
+            IOUtils.copyLarge(is, baos);
+            return baos.toByteArray();
+        }
+    }
+
+    InputStream getStreamById(long id, long createdAt) {
+        final List<byte[]> results;
+        final EntityManager em = emf.createEntityManager();
+        try {
+            results = new DiskCacheQueryFactory(em).getDataByIdQuery(id, createdAt).getResultList();
+        } finally {
+            em.close();
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+
+        if (results.get(0) == null) {
+            try {
+                return new FileInputStream(new File(this.fileStorageDir, Long.toString(id)));
+            } catch (FileNotFoundException ex) {
+                return null;
+            }
+        } else {
+            return new ByteArrayInputStream(results.get(0));
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (emf != null) {
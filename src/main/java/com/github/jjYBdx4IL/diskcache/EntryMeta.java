@@ -0,0 +1,75 @@
+package com.github.jjYBdx4IL.diskcache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Metadata of a single cache entry as returned by {@link DiskCache#scan(String, long)}. Instances do not hold
+ * the entry's data, it gets fetched on demand via {@link #getData()} or {@link #getStream()}.
+ *
+ * @author Github jjYBdx4IL Projects
+ */
+public class EntryMeta {
+
+    private final DiskCache cache;
+    private final long id;
+    private final String key;
+    private final long size;
+    private final long createdAt;
+
+    EntryMeta(DiskCache cache, long id, String key, long size, long createdAt) {
+        this.cache = cache;
+        this.id = id;
+        this.key = key;
+        this.size = size;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return the entry's data, or null if the entry has been replaced since it was scanned.
+     * @throws IOException
+     */
+    public byte[] getData() throws IOException {
+        return cache.getById(id, createdAt);
+    }
+
+    /**
+     * @return the entry's data as a stream, or null if the entry has been replaced since it was
+     * scanned.
+     */
+    public InputStream getStream() {
+        return cache.getStreamById(id, createdAt);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("EntryMeta [id=");
+        builder.append(id);
+        builder.append(", key=");
+        builder.append(key);
+        builder.append(", size=");
+        builder.append(size);
+        builder.append(", createdAt=");
+        builder.append(createdAt);
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
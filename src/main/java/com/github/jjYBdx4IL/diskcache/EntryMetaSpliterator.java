@@ -0,0 +1,92 @@
+package com.github.jjYBdx4IL.diskcache;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Pages through the entry ids in (afterId, maxId] using keyset pagination, ie. every page is a separate
+ * short query starting after the last id seen. Only one page is held in memory at a time. Splitting hands
+ * off the already fetched page and the lower half of the not yet fetched id range, so the returned
+ * spliterator always covers a prefix of this one.
+ *
+ * @author Github jjYBdx4IL Projects
+ */
+class EntryMetaSpliterator implements Spliterator<EntryMeta> {
+
+    private final DiskCache cache;
+    private final String keyPrefix;
+    private final long notBefore;
+    private final int pageSize;
+    private final ArrayDeque<EntryMeta> page = new ArrayDeque<>();
+    private long afterId;
+    private long maxId;
+    private boolean exhausted = false;
+
+    EntryMetaSpliterator(DiskCache cache, String keyPrefix, long notBefore, long afterId, long maxId,
+            int pageSize) {
+        this.cache = cache;
+        this.keyPrefix = keyPrefix;
+        this.notBefore = notBefore;
+        this.afterId = afterId;
+        this.maxId = maxId;
+        this.pageSize = pageSize;
+        if (afterId >= maxId) {
+            exhausted = true;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super EntryMeta> action) {
+        if (page.isEmpty() && !exhausted) {
+            fetchPage();
+        }
+        EntryMeta meta = page.poll();
+        if (meta == null) {
+            return false;
+        }
+        action.accept(meta);
+        return true;
+    }
+
+    private void fetchPage() {
+        List<EntryMeta> results = cache.fetchMetaPage(keyPrefix, notBefore, afterId, maxId, pageSize);
+        if (results.size() < pageSize) {
+            exhausted = true;
+        }
+        if (!results.isEmpty()) {
+            afterId = results.get(results.size() - 1).getId();
+            page.addAll(results);
+        }
+        if (afterId >= maxId) {
+            exhausted = true;
+        }
+    }
+
+    @Override
+    public Spliterator<EntryMeta> trySplit() {
+        if (exhausted || maxId - afterId < 2L * pageSize) {
+            return null;
+        }
+        final long mid = afterId + (maxId - afterId) / 2L;
+        EntryMetaSpliterator prefix = new EntryMetaSpliterator(cache, keyPrefix, notBefore, afterId, mid,
+                pageSize);
+        // already fetched entries precede (afterId, mid]
+        prefix.page.addAll(page);
+        page.clear();
+        afterId = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return exhausted ? page.size() : maxId - afterId + page.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+
+}
@@ -9,7 +9,9 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
+import javax.persistence.Table;
 import javax.persistence.Version;
 
 /**
@@ -17,6 +19,7 @@ import javax.persistence.Version;
  * @author Github jjYBdx4IL Projects
  */
 @Entity
+@Table(indexes = { @Index(columnList = "url") })
 public class DiskCacheEntry {
 
     @Id
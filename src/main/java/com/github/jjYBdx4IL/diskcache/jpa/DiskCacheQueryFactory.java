@@ -1,8 +1,13 @@
 package com.github.jjYBdx4IL.diskcache.jpa;
 
+import java.util.Collection;
+
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
@@ -31,4 +36,96 @@ public class DiskCacheQueryFactory {
         return em.createQuery(criteriaQuery);
     }
 
+    /**
+     * Selects the ids of all finished entries for the given url.
+     */
+    public TypedQuery<Long> getIdsByUrlQuery(String url) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
+        final Root<DiskCacheEntry> root = criteriaQuery.from(DiskCacheEntry.class);
+
+        criteriaQuery.select(root.get(DiskCacheEntry_.id));
+        criteriaQuery.where(cb.and(
+                cb.equal(root.get(DiskCacheEntry_.url), url),
+                cb.ge(root.get(DiskCacheEntry_.size), 0)));
+        return em.createQuery(criteriaQuery);
+    }
+
+    public Query getDeleteByIdsQuery(Collection<Long> ids) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaDelete<DiskCacheEntry> criteriaDelete = cb.createCriteriaDelete(DiskCacheEntry.class);
+        final Root<DiskCacheEntry> root = criteriaDelete.from(DiskCacheEntry.class);
+
+        criteriaDelete.where(root.get(DiskCacheEntry_.id).in(ids));
+        return em.createQuery(criteriaDelete);
+    }
+
+    /**
+     * Selects the lowest and the highest entry id, in that order. Both are null if the table is empty.
+     */
+    public TypedQuery<Tuple> getIdRangeQuery() {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+        final Root<DiskCacheEntry> root = criteriaQuery.from(DiskCacheEntry.class);
+
+        criteriaQuery.multiselect(cb.min(root.get(DiskCacheEntry_.id)), cb.max(root.get(DiskCacheEntry_.id)));
+        return em.createQuery(criteriaQuery);
+    }
+
+    /**
+     * Selects one page of entry metadata (id, url, size, createdAt) ordered by id, without touching the
+     * data column.
+     *
+     * @param keyPrefix only select keys starting with this prefix. may be null.
+     * @param notBefore only select entries created at or after this timestamp (millis). 0 or less to select
+     * all entries.
+     * @param afterId exclusive lower id bound.
+     * @param maxId inclusive upper id bound.
+     * @param pageSize max number of rows returned.
+     */
+    public TypedQuery<Tuple> getMetaPageQuery(String keyPrefix, long notBefore, long afterId, long maxId,
+            int pageSize) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+        final Root<DiskCacheEntry> root = criteriaQuery.from(DiskCacheEntry.class);
+
+        criteriaQuery.multiselect(root.get(DiskCacheEntry_.id), root.get(DiskCacheEntry_.url),
+                root.get(DiskCacheEntry_.size), root.get(DiskCacheEntry_.createdAt));
+
+        Predicate p = cb.and(
+                cb.gt(root.get(DiskCacheEntry_.id), afterId),
+                cb.le(root.get(DiskCacheEntry_.id), maxId),
+                cb.ge(root.get(DiskCacheEntry_.size), 0));
+        if (notBefore > 0L) {
+            p = cb.and(p, cb.ge(root.get(DiskCacheEntry_.createdAt), notBefore));
+        }
+        if (keyPrefix != null && !keyPrefix.isEmpty()) {
+            p = cb.and(p, cb.like(root.get(DiskCacheEntry_.url), escapeLike(keyPrefix) + "%", '\\'));
+        }
+        criteriaQuery.where(p);
+        criteriaQuery.orderBy(cb.asc(root.get(DiskCacheEntry_.id)));
+        return em.createQuery(criteriaQuery).setMaxResults(pageSize);
+    }
+
+    /**
+     * Selects the data column of a single entry. The createdAt timestamp guards against picking up contents
+     * that have been stored under the same id in the meantime.
+     */
+    public TypedQuery<byte[]> getDataByIdQuery(long id, long createdAt) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<byte[]> criteriaQuery = cb.createQuery(byte[].class);
+        final Root<DiskCacheEntry> root = criteriaQuery.from(DiskCacheEntry.class);
+
+        criteriaQuery.select(root.get(DiskCacheEntry_.data));
+        criteriaQuery.where(cb.and(
+                cb.equal(root.get(DiskCacheEntry_.id), id),
+                cb.equal(root.get(DiskCacheEntry_.createdAt), createdAt),
+                cb.ge(root.get(DiskCacheEntry_.size), 0)));
+        return em.createQuery(criteriaQuery);
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
 }
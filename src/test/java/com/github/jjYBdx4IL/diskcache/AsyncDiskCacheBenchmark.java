@@ -0,0 +1,104 @@
+package com.github.jjYBdx4IL.diskcache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures put/get throughput of {@link AsyncDiskCache} with {@value #CALLERS} concurrent caller threads
+ * for an increasing number of I/O threads. Not part of the default test run, start it with
+ * <code>mvn test -Dtest=AsyncDiskCacheBenchmark</code>.
+ *
+ * @author jjYBdx4IL
+ */
+public class AsyncDiskCacheBenchmark {
+
+    static {
+        // trace logging enables hibernate's SQL output, which would dominate the measurement
+        System.setProperty("org.slf4j.simpleLogger.log.com.github.jjYBdx4IL.diskcache", "info");
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDiskCacheBenchmark.class);
+    private static final int CALLERS = 10000;
+    private static final int MAX_PENDING = 1024;
+    private static final long CALLER_STACK_SIZE = 256 * 1024;
+
+    @Test
+    public void testThroughputScaling() throws Exception {
+        // warm up
+        run(4, "warmup/");
+
+        double single = run(1, "run1/");
+        double multi = 0;
+        for (int ioThreads : new int[] { 4, 16 }) {
+            multi = Math.max(multi, run(ioThreads, "run" + ioThreads + "/"));
+        }
+
+        // more I/O threads cannot help without the cores to run them
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= 4);
+        assertTrue(String.format(Locale.ROOT, "no scaling: %.0f ops/s vs. %.0f ops/s", multi, single),
+                multi > single);
+    }
+
+    /**
+     * Every caller thread stores one key and reads it back. Each run starts with an empty database, so all
+     * runs measure the same table size.
+     *
+     * @return operations per second
+     */
+    private double run(int ioThreads, final String prefix) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(CALLERS);
+        final AtomicInteger ok = new AtomicInteger();
+
+        try (DiskCache cache = new DiskCache(null, "AsyncDiskCacheBenchmark", true);
+                final AsyncDiskCache asyncCache = new AsyncDiskCache(cache, ioThreads, MAX_PENDING)) {
+            List<Thread> callers = new ArrayList<>(CALLERS);
+            for (int i = 0; i < CALLERS; i++) {
+                final String key = prefix + i;
+                final byte[] value = Integer.toString(i).getBytes();
+                Thread t = new Thread(null, () -> {
+                    try {
+                        start.await();
+                        asyncCache.putAsyncBlocking(key, value).get();
+                        byte[] result = asyncCache.getAsyncBlocking(key).get();
+                        if (result != null && new String(result).equals(new String(value))) {
+                            ok.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        LOG.error("", ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "caller-" + i, CALLER_STACK_SIZE);
+                t.start();
+                callers.add(t);
+            }
+
+            long startNanos = System.nanoTime();
+            start.countDown();
+            done.await();
+            long nanos = System.nanoTime() - startNanos;
+
+            for (Thread t : callers) {
+                t.join();
+            }
+            assertEquals(CALLERS, ok.get());
+
+            double opsPerSec = 2L * CALLERS * 1e9 / nanos;
+            LOG.info(String.format(Locale.ROOT, "%d callers, %2d I/O threads: %.0f ops/s (%.1f s)", CALLERS,
+                    ioThreads, opsPerSec, nanos / 1e9));
+            return opsPerSec;
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.github.jjYBdx4IL.diskcache;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.AfterClass;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author jjYBdx4IL
+ */
+public class AsyncDiskCacheTest {
+
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final DiskCache cache = new DiskCache(null, "AsyncDiskCacheTest", true) {
+        @Override
+        public byte[] get(String key) throws IOException {
+            // lets tests keep the I/O threads busy
+            if (key.startsWith("blocking/")) {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            return super.get(key);
+        }
+    };
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        release.countDown();
+        cache.close();
+    }
+
+    @Test
+    public void testPutGetAsync() throws Exception {
+        try (AsyncDiskCache asyncCache = new AsyncDiskCache(cache)) {
+            assertNull(asyncCache.getAsync("testPutGetAsync").get());
+            asyncCache.putAsync("testPutGetAsync", "1234".getBytes()).get();
+            assertArrayEquals("1234".getBytes(), asyncCache.getAsync("testPutGetAsync").get());
+            assertArrayEquals("1234".getBytes(), asyncCache.getAsyncBlocking("testPutGetAsync").get());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutAsyncNullKey() throws Throwable {
+        try (AsyncDiskCache asyncCache = new AsyncDiskCache(cache)) {
+            asyncCache.putAsync(null, "123".getBytes()).join();
+        } catch (RuntimeException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Test
+    public void testRejectWhenFull() throws Exception {
+        try (AsyncDiskCache asyncCache = new AsyncDiskCache(cache, 1, 1)) {
+            CompletableFuture<byte[]> first = asyncCache.getAsync("blocking/testRejectWhenFull");
+            CompletableFuture<byte[]> second = asyncCache.getAsync("testRejectWhenFull");
+            assertTrue(second.isCompletedExceptionally());
+            try {
+                second.get();
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof RejectedExecutionException);
+            }
+            release.countDown();
+            assertNull(first.get());
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testPutAsyncAfterClose() throws Throwable {
+        AsyncDiskCache asyncCache = new AsyncDiskCache(cache);
+        asyncCache.close();
+        try {
+            asyncCache.putAsyncBlocking("testPutAsyncAfterClose", "123".getBytes()).join();
+        } catch (RuntimeException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Test
+    public void testChainBlockingCallFromCallback() throws Exception {
+        try (AsyncDiskCache asyncCache = new AsyncDiskCache(cache, 2, 1)) {
+            asyncCache.getAsync("testChainBlockingCallFromCallback")
+                    .thenCompose(v -> asyncCache.putAsyncBlocking("testChainBlockingCallFromCallback",
+                            "1".getBytes()))
+                    .thenCompose(v -> asyncCache.getAsync("testChainBlockingCallFromCallback"))
+                    .get(10, TimeUnit.SECONDS);
+            assertArrayEquals("1".getBytes(),
+                    asyncCache.getAsyncBlocking("testChainBlockingCallFromCallback").get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testCallbacksNotRunOnIoThreads() throws Exception {
+        try (AsyncDiskCache asyncCache = new AsyncDiskCache(cache, 1, 1)) {
+            String threadName = asyncCache.getAsync("testCallbacksNotRunOnIoThreads")
+                    .thenApply(v -> Thread.currentThread().getName())
+                    .get(10, TimeUnit.SECONDS);
+            assertFalse(threadName, threadName.startsWith("diskcache-io-"));
+        }
+    }
+
+}
@@ -2,11 +2,19 @@ package com.github.jjYBdx4IL.diskcache;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.junit.AfterClass;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,4 +93,103 @@ public class DiskCacheTest {
         assertArrayEquals(buf, cache.get("testLargeFile"));
     }
 
+    @Test
+    public void testScan() throws IOException {
+        cache.put("testScan/a", "a".getBytes());
+        cache.put("testScan/b", "bb".getBytes());
+        cache.put("testScan_c", "c".getBytes());
+        cache.put("testScanXd", "d".getBytes());
+
+        List<EntryMeta> metas = cache.scan("testScan/", -1L).collect(Collectors.toList());
+        assertEquals(2, metas.size());
+        assertEquals("testScan/a", metas.get(0).getKey());
+        assertEquals("testScan/b", metas.get(1).getKey());
+        assertEquals(2L, metas.get(1).getSize());
+        assertArrayEquals("bb".getBytes(), metas.get(1).getData());
+
+        // '_' must not act as a wildcard
+        List<String> keys = cache.scan("testScan_", -1L).map(EntryMeta::getKey).collect(Collectors.toList());
+        assertEquals(1, keys.size());
+        assertEquals("testScan_c", keys.get(0));
+    }
+
+    @Test
+    public void testScanExpiry() throws Exception {
+        cache.put("testScanExpiry/old1", "1".getBytes());
+        cache.put("testScanExpiry/old2", "2".getBytes());
+        Thread.sleep(1000L);
+        cache.put("testScanExpiry/new1", "3".getBytes());
+        cache.put("testScanExpiry/new2", "4".getBytes());
+
+        List<String> keys = cache.scan("testScanExpiry/", 500L).map(EntryMeta::getKey)
+                .collect(Collectors.toList());
+        assertEquals(2, keys.size());
+        assertEquals("testScanExpiry/new1", keys.get(0));
+        assertEquals("testScanExpiry/new2", keys.get(1));
+        assertEquals(4L, cache.scan("testScanExpiry/", -1L).count());
+    }
+
+    @Test
+    public void testScanLargeFile() throws IOException {
+        byte[] buf = new byte[2 * (int) DiskCache.MAX_BLOB_SIZE];
+        for (int i = 0; i<buf.length; i++) {
+            buf[i] = (byte) i;
+        }
+        cache.put("testScanLargeFile", buf);
+
+        List<EntryMeta> metas = cache.scan("testScanLargeFile", -1L).collect(Collectors.toList());
+        assertEquals(1, metas.size());
+        assertEquals(buf.length, metas.get(0).getSize());
+        assertArrayEquals(buf, metas.get(0).getData());
+    }
+
+    @Test
+    public void testScanParallel() throws IOException {
+        final int n = 3 * DiskCache.SCAN_PAGE_SIZE;
+        for (int i = 0; i < n; i++) {
+            cache.put("testScanParallel/" + i, Integer.toString(i).getBytes());
+        }
+
+        assertNotNull(cache.scanSpliterator("testScanParallel/", -1L).trySplit());
+
+        List<Long> ids = cache.scan("testScanParallel/", -1L).map(EntryMeta::getId).collect(Collectors.toList());
+        assertEquals(n, ids.size());
+        assertEquals(ids, cache.scan("testScanParallel/", -1L).parallel().map(EntryMeta::getId)
+                .collect(Collectors.toList()));
+        assertEquals(n, cache.scan("testScanParallel/", -1L).parallel().map(EntryMeta::getKey).distinct().count());
+    }
+
+    @Test
+    public void testConcurrentSameKeyPut() throws Exception {
+        final int n = 200;
+        final List<byte[]> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // mix entries stored inside the database with entries stored in separate files
+            byte[] value = new byte[i % 2 == 0 ? i + 1 : (int) DiskCache.MAX_BLOB_SIZE + i];
+            value[0] = (byte) i;
+            values.add(value);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>(n);
+            for (final byte[] value : values) {
+                futures.add(executor.submit(() -> {
+                    cache.put("testConcurrentSameKeyPut", value);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        byte[] result = cache.get("testConcurrentSameKeyPut");
+        assertNotNull(result);
+        assertArrayEquals(values.get(result[0] & 0xFF), result);
+        assertTrue(cache.scan("testConcurrentSameKeyPut", -1L).count() >= 1);
+    }
+
 }